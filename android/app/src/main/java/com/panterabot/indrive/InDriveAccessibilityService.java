@@ -3,13 +3,44 @@ package com.panterabot.indrive;
 import android.accessibilityservice.AccessibilityService;
 import android.accessibilityservice.AccessibilityServiceInfo;
 import android.content.Intent;
+import android.os.Bundle;
 import android.util.Log;
 import android.view.accessibility.AccessibilityEvent;
 import android.view.accessibility.AccessibilityNodeInfo;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
 public class InDriveAccessibilityService extends AccessibilityService {
     private static final String TAG = "PanteraBot_Accessibility";
     private static final String INDRIVE_PACKAGE = "sinet.startup.inDriver";
+
+    private static final String TRAVERSAL_TAG = "PanteraBot_Traversal";
+
+    // Límite de seguridad contra árboles degenerados; si el log muestra cortes por profundidad
+    // (adb shell setprop log.tag.PanteraBot_Traversal DEBUG) el límite está recortando la pantalla
+    private static final int MAX_TRAVERSAL_DEPTH = 64;
+
+    // getClassName() reporta la clase de accesibilidad (ancestro del framework), no la clase real:
+    // añadir solo nombres que aparezcan tal cual en un volcado de nodos
+    private static final String[] IGNORED_CLASS_NAMES = {};
+
+    // IDs de contenedores sin viajes (mapa, barras decorativas), con formato
+    // "sinet.startup.inDriver:id/<nombre>" tomado de un volcado real (uiautomator dump).
+    // No se aplican a la búsqueda del botón confirmar, que puede estar en una barra de herramientas
+    private static final String[] IGNORED_VIEW_IDS = {};
+
+    private final NodeTraversal contentTraversal = new NodeTraversal(
+        MAX_TRAVERSAL_DEPTH,
+        new HashSet<>(Arrays.asList(IGNORED_CLASS_NAMES)),
+        new HashSet<>(Arrays.asList(IGNORED_VIEW_IDS))
+    );
+    private final NodeTraversal confirmTraversal = new NodeTraversal(
+        MAX_TRAVERSAL_DEPTH,
+        new HashSet<>(Arrays.asList(IGNORED_CLASS_NAMES)),
+        Collections.<String>emptySet()
+    );
     
     private boolean isMonitoring = false;
     private boolean autobidEnabled = true;
@@ -110,38 +141,34 @@ public class InDriveAccessibilityService extends AccessibilityService {
         }
     }
 
-    private void findAndProcessTripsAutomatically(AccessibilityNodeInfo node) {
-        if (node == null) return;
+    private void findAndProcessTripsAutomatically(AccessibilityNodeInfo rootNode) {
+        if (rootNode == null) return;
         
         try {
-            // Buscar textos que indiquen viajes disponibles
-            CharSequence text = node.getText();
-            if (text != null) {
-                String textStr = text.toString().toLowerCase();
-                
-                // Detectar elementos relacionados con viajes
-                if (textStr.contains("km") || 
-                    textStr.contains("$") || 
-                    textStr.contains("precio") ||
-                    textStr.contains("destino") ||
-                    textStr.contains("pickup") ||
-                    textStr.contains("recoger")) {
-                    
-                    Log.d(TAG, "🚗 Viaje detectado AUTOMÁTICAMENTE: " + textStr);
+            NodeTraversal.Result result = contentTraversal.traverse(rootNode, (node, depth) -> {
+                // Buscar textos que indiquen viajes disponibles
+                CharSequence text = node.getText();
+                if (text != null) {
+                    String textStr = text.toString().toLowerCase();
                     
-                    // Procesar automáticamente el viaje detectado
-                    processDetectedTripAutomatically(textStr, node);
+                    // Detectar elementos relacionados con viajes
+                    if (textStr.contains("km") || 
+                        textStr.contains("$") || 
+                        textStr.contains("precio") ||
+                        textStr.contains("destino") ||
+                        textStr.contains("pickup") ||
+                        textStr.contains("recoger")) {
+                        
+                        Log.d(TAG, "🚗 Viaje detectado AUTOMÁTICAMENTE: " + textStr);
+                        
+                        // Procesar automáticamente el viaje detectado
+                        processDetectedTripAutomatically(textStr, node);
+                    }
                 }
-            }
+                return false;
+            });
             
-            // Buscar recursivamente en nodos hijos
-            for (int i = 0; i < node.getChildCount(); i++) {
-                AccessibilityNodeInfo child = node.getChild(i);
-                if (child != null) {
-                    findAndProcessTripsAutomatically(child);
-                    child.recycle();
-                }
-            }
+            logTraversal("viajes", result);
             
         } catch (Exception e) {
             Log.e(TAG, "❌ Error buscando elementos automáticamente: " + e.getMessage());
@@ -290,7 +317,7 @@ public class InDriveAccessibilityService extends AccessibilityService {
                     priceField.performAction(AccessibilityNodeInfo.ACTION_SET_TEXT, arguments);
                     
                     Log.d(TAG, "💵 Precio ingresado automáticamente: $" + bidPrice);
-                    priceField.recycle();
+                    if (priceField != rootNode) priceField.recycle();
                 }
                 rootNode.recycle();
             }
@@ -308,7 +335,7 @@ public class InDriveAccessibilityService extends AccessibilityService {
                 if (confirmButton != null) {
                     confirmButton.performAction(AccessibilityNodeInfo.ACTION_CLICK);
                     Log.d(TAG, "✅ Oferta confirmada automáticamente");
-                    confirmButton.recycle();
+                    if (confirmButton != rootNode) confirmButton.recycle();
                 }
                 rootNode.recycle();
             }
@@ -317,57 +344,43 @@ public class InDriveAccessibilityService extends AccessibilityService {
         }
     }
 
-    private AccessibilityNodeInfo findPriceInputField(AccessibilityNodeInfo node) {
+    private AccessibilityNodeInfo findPriceInputField(AccessibilityNodeInfo rootNode) {
         // Buscar campo de entrada de precio
-        if (node == null) return null;
-        
-        if (node.getClassName() != null && 
-            node.getClassName().toString().contains("EditText")) {
-            return node;
-        }
+        if (rootNode == null) return null;
         
-        for (int i = 0; i < node.getChildCount(); i++) {
-            AccessibilityNodeInfo child = node.getChild(i);
-            if (child != null) {
-                AccessibilityNodeInfo result = findPriceInputField(child);
-                if (result != null) {
-                    child.recycle();
-                    return result;
-                }
-                child.recycle();
-            }
-        }
+        NodeTraversal.Result result = contentTraversal.traverse(rootNode, (node, depth) ->
+            node.getClassName() != null &&
+            node.getClassName().toString().contains("EditText"));
         
-        return null;
+        logTraversal("campo de precio", result);
+        return result.match;
     }
 
-    private AccessibilityNodeInfo findConfirmButton(AccessibilityNodeInfo node) {
+    private AccessibilityNodeInfo findConfirmButton(AccessibilityNodeInfo rootNode) {
         // Buscar botón de confirmar
-        if (node == null) return null;
+        if (rootNode == null) return null;
         
-        CharSequence text = node.getText();
-        if (text != null) {
+        NodeTraversal.Result result = confirmTraversal.traverse(rootNode, (node, depth) -> {
+            CharSequence text = node.getText();
+            if (text == null) return false;
+            
             String textStr = text.toString().toLowerCase();
-            if (textStr.contains("confirmar") || 
-                textStr.contains("enviar") || 
-                textStr.contains("ofertar")) {
-                return node;
-            }
-        }
+            return textStr.contains("confirmar") || 
+                   textStr.contains("enviar") || 
+                   textStr.contains("ofertar");
+        });
         
-        for (int i = 0; i < node.getChildCount(); i++) {
-            AccessibilityNodeInfo child = node.getChild(i);
-            if (child != null) {
-                AccessibilityNodeInfo result = findConfirmButton(child);
-                if (result != null) {
-                    child.recycle();
-                    return result;
-                }
-                child.recycle();
-            }
-        }
+        logTraversal("botón confirmar", result);
+        return result.match;
+    }
+
+    private void logTraversal(String scan, NodeTraversal.Result result) {
+        // Se ejecuta en cada cambio de contenido: no construir el mensaje si el tag está desactivado
+        if (!Log.isLoggable(TRAVERSAL_TAG, Log.DEBUG)) return;
         
-        return null;
+        Log.d(TRAVERSAL_TAG, "🌳 Recorrido " + scan + ": " + result.visitedNodes +
+                             " nodos visitados, " + result.prunedSubtrees + " subárboles podados, " +
+                             result.depthCutoffs + " cortes por profundidad");
     }
 
     // Clase para almacenar información del viaje
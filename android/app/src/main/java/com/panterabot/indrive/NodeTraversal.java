@@ -0,0 +1,147 @@
+package com.panterabot.indrive;
+
+import android.graphics.Rect;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Recorrido iterativo del árbol de accesibilidad con pila explícita y poda.
+ *
+ * Se descartan (junto con todo su subárbol) los nodos invisibles, los que
+ * quedan fuera del viewport, los de clases o IDs ignorados y los que superan
+ * la profundidad máxima. Cada recorrido informa cuántos nodos visitó,
+ * cuántos subárboles podó por las reglas de poda y en cuántos nodos cortó
+ * la expansión por alcanzar la profundidad máxima.
+ *
+ * getClassName() devuelve el nombre de clase de accesibilidad, que es el
+ * ancestro del framework más cercano (un MapView aparece como FrameLayout,
+ * un Toolbar como ViewGroup), así que los contenedores propios de la app se
+ * podan por ID de vista y no por clase.
+ */
+final class NodeTraversal {
+
+    /** Callback por nodo visitado. Devuelve true para detener el recorrido en ese nodo. */
+    interface Visitor {
+        boolean visit(AccessibilityNodeInfo node, int depth);
+    }
+
+    /** Resultado de un recorrido. */
+    static final class Result {
+        /** Nodo donde se detuvo el visitante, o null. El llamador debe reciclarlo si no es la raíz. */
+        final AccessibilityNodeInfo match;
+        final int visitedNodes;
+        /** Nodos descartados con todo su subárbol por las reglas de poda. */
+        final int prunedSubtrees;
+        /** Nodos con hijos que no se expandieron por alcanzar la profundidad máxima. */
+        final int depthCutoffs;
+
+        Result(AccessibilityNodeInfo match, int visitedNodes, int prunedSubtrees, int depthCutoffs) {
+            this.match = match;
+            this.visitedNodes = visitedNodes;
+            this.prunedSubtrees = prunedSubtrees;
+            this.depthCutoffs = depthCutoffs;
+        }
+    }
+
+    private static final class Frame {
+        final AccessibilityNodeInfo node;
+        final int depth;
+
+        Frame(AccessibilityNodeInfo node, int depth) {
+            this.node = node;
+            this.depth = depth;
+        }
+    }
+
+    private final int maxDepth;
+    private final Set<String> ignoredClassNames;
+    private final Set<String> ignoredViewIds;
+
+    NodeTraversal(int maxDepth, Set<String> ignoredClassNames, Set<String> ignoredViewIds) {
+        this.maxDepth = maxDepth;
+        this.ignoredClassNames = Collections.unmodifiableSet(new HashSet<>(ignoredClassNames));
+        this.ignoredViewIds = Collections.unmodifiableSet(new HashSet<>(ignoredViewIds));
+    }
+
+    /**
+     * Recorre el árbol en preorden a partir de root. La raíz pertenece al
+     * llamador y nunca se recicla aquí; el resto de nodos se reciclan salvo
+     * el que devuelva el visitante como coincidencia.
+     */
+    Result traverse(AccessibilityNodeInfo root, Visitor visitor) {
+        if (root == null) return new Result(null, 0, 0, 0);
+
+        Rect viewport = new Rect();
+        root.getBoundsInScreen(viewport);
+
+        Rect bounds = new Rect();
+        ArrayDeque<Frame> stack = new ArrayDeque<>();
+        stack.push(new Frame(root, 0));
+
+        AccessibilityNodeInfo match = null;
+        int visited = 0;
+        int prunedSubtrees = 0;
+        int depthCutoffs = 0;
+
+        while (!stack.isEmpty()) {
+            Frame frame = stack.pop();
+            AccessibilityNodeInfo node = frame.node;
+
+            if (shouldPrune(node, viewport, bounds)) {
+                prunedSubtrees++;
+                recycle(node, root);
+                continue;
+            }
+
+            visited++;
+            if (visitor.visit(node, frame.depth)) {
+                match = node;
+                break;
+            }
+
+            if (frame.depth < maxDepth) {
+                // Apilar en orden inverso para conservar el orden de los hijos
+                for (int i = node.getChildCount() - 1; i >= 0; i--) {
+                    AccessibilityNodeInfo child = node.getChild(i);
+                    if (child != null) {
+                        stack.push(new Frame(child, frame.depth + 1));
+                    }
+                }
+            } else if (node.getChildCount() > 0) {
+                depthCutoffs++;
+            }
+
+            recycle(node, root);
+        }
+
+        // Liberar los nodos pendientes si el recorrido terminó antes
+        while (!stack.isEmpty()) {
+            recycle(stack.pop().node, root);
+        }
+
+        return new Result(match, visited, prunedSubtrees, depthCutoffs);
+    }
+
+    private boolean shouldPrune(AccessibilityNodeInfo node, Rect viewport, Rect bounds) {
+        if (!node.isVisibleToUser()) return true;
+
+        node.getBoundsInScreen(bounds);
+        if (!Rect.intersects(viewport, bounds)) return true;
+
+        CharSequence className = node.getClassName();
+        if (className != null && ignoredClassNames.contains(className.toString())) return true;
+
+        String viewId = node.getViewIdResourceName();
+        return viewId != null && ignoredViewIds.contains(viewId);
+    }
+
+    private static void recycle(AccessibilityNodeInfo node, AccessibilityNodeInfo root) {
+        if (node != root) {
+            node.recycle();
+        }
+    }
+}